@@ -5,6 +5,7 @@ public class App {
     public static void main(String[] args) throws Exception {
         B3RTree b = null;
         BufferedReader consoleReader = new BufferedReader(new InputStreamReader(System.in));
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
 
         System.out.println("Welcome to the B3R Tree operations:tre");
         
@@ -45,7 +46,25 @@ public class App {
                         case "s":
                             if (b != null) {
                                 System.out.println("Tree:");
-                                System.out.println(b.toString());
+                                new TreeRenderer(b).writeTree(out);
+                                out.write(System.lineSeparator());
+                                out.flush();
+                            }
+                            break;
+                        case "ss":
+                            if (b != null) {
+                                int maxDepth = data.length > 1 ? Integer.parseInt(data[1]) : 3;
+                                System.out.println("Tree summary:");
+                                new TreeRenderer(b).writeSummary(out, maxDepth);
+                                out.flush();
+                            }
+                            break;
+                        case "g":
+                            if (b != null) {
+                                try (Writer dot = new BufferedWriter(new FileWriter(data[1]))) {
+                                    new TreeRenderer(b).writeDot(dot);
+                                }
+                                System.out.println("Graph written to " + data[1]);
                             }
                             break;
                         case "nn":
@@ -64,6 +83,36 @@ public class App {
                                 System.out.println("Value " + search + " in tree? " + b.searchValue(search));
                             }
                             break;
+                        case "d":
+                            if (b != null) {
+                                int value = Integer.parseInt(data[1]);
+                                b.delete(value);
+                            }
+                            break;
+                        case "r":
+                            if (b != null) {
+                                int low = Integer.parseInt(data[1]);
+                                int high = Integer.parseInt(data[2]);
+                                System.out.println("Values in [" + low + ", " + high + "]: " + b.rangeSearch(low, high));
+                            }
+                            break;
+                        case "f":
+                            if (b != null) {
+                                int expected = data.length > 1 ? Integer.parseInt(data[1]) : 0;
+                                b.enableFilter(expected);
+                            }
+                            break;
+                        case "fs":
+                            if (b != null && b.getFilter() != null) {
+                                KeyFilter filter = b.getFilter();
+                                System.out.println("Filter keys: " + filter.getCount() + "/" + filter.getCapacity()
+                                        + ", probes: " + filter.getProbes()
+                                        + ", definite misses: " + filter.getDefiniteMisses()
+                                        + ", false positives: " + filter.getFalsePositives());
+                                System.out.printf("Filter false-positive rate: observed %.4f, expected %.4f%n",
+                                        filter.getObservedFalsePositiveRate(), filter.getExpectedFalsePositiveRate());
+                            }
+                            break;
                         default:
                             break;
                     }
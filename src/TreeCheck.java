@@ -0,0 +1,184 @@
+import main.*;
+import java.util.*;
+
+/**
+ * Randomized check of the B3RTree against a reference multiset. Every seed replays a random
+ * sequence of inserts and deletes over a small key range (so there are many duplicates) and,
+ * after every operation, compares lookups, key count, range, minimum and maximum with the
+ * reference and verifies the structure of the tree. The negative-lookup filter is enabled on
+ * every other seed.
+ * <p>
+ * Usage: {@code java TreeCheck [seeds] [operations] [keyRange]}. Exits with status 1 on the first mismatch.
+ */
+public class TreeCheck {
+
+    /**
+     * Checks the given number of seeds and prints the first mismatch, if any.
+     *
+     * @param args the optional number of seeds, operations per seed and distinct keys.
+     */
+    public static void main(String[] args) {
+        int seeds = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int keyRange = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        for (int seed = 0; seed < seeds; seed++) {
+            String error = checkSeed(seed, operations, keyRange);
+            if (error != null) {
+                System.out.println("FAILED (seed " + seed + "): " + error);
+                System.exit(1);
+            }
+        }
+        System.out.println("OK: " + seeds + " seeds x " + operations + " operations");
+    }
+
+    /**
+     * Replays one random sequence of operations.
+     *
+     * @param seed the seed of the sequence.
+     * @param operations the number of operations.
+     * @param keyRange the number of distinct keys.
+     * @return a description of the first mismatch, or {@code null} if there is none.
+     */
+    private static String checkSeed(long seed, int operations, int keyRange) {
+        Random random = new Random(seed);
+        B3RTree tree = new B3RTree();
+        TreeMap<Integer, Integer> reference = new TreeMap<>();
+        int size = 0;
+        if (seed % 2 == 1) {
+            tree.enableFilter(4);
+        }
+
+        for (int op = 0; op < operations; op++) {
+            int key = random.nextInt(keyRange);
+            String last;
+            try {
+                if (random.nextInt(10) < 5) {
+                    last = "i " + key;
+                    tree.insert(key);
+                    reference.merge(key, 1, Integer::sum);
+                    size++;
+                } else {
+                    last = "d " + key;
+                    tree.delete(key);
+                    if (reference.containsKey(key)) {
+                        reference.compute(key, (k, count) -> count == 1 ? null : count - 1);
+                        size--;
+                    }
+                }
+            } catch (RuntimeException e) {
+                return "operation " + op + " threw " + e;
+            }
+
+            String error = compare(tree, reference, size, keyRange, random);
+            if (error == null) {
+                error = checkStructure(tree);
+            }
+            if (error != null) {
+                return "after operation " + op + " (" + last + "): " + error;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compares the answers of the tree with the reference multiset.
+     *
+     * @return a description of the mismatch, or {@code null} if there is none.
+     */
+    private static String compare(B3RTree tree, TreeMap<Integer, Integer> reference, int size, int keyRange, Random random) {
+        if (tree.getTotalKeys() != size) {
+            return "getTotalKeys() = " + tree.getTotalKeys() + ", expected " + size;
+        }
+        for (int probe = 0; probe < 5; probe++) {
+            int key = random.nextInt(keyRange + 20) - 10;
+            if (tree.searchValue(key) != reference.containsKey(key)) {
+                return "searchValue(" + key + ") = " + tree.searchValue(key);
+            }
+        }
+
+        int low = random.nextInt(keyRange);
+        int high = low + random.nextInt(keyRange / 4 + 1);
+        ArrayList<Integer> expected = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : reference.subMap(low, true, high, true).entrySet()) {
+            for (int c = 0; c < entry.getValue(); c++) {
+                expected.add(entry.getKey());
+            }
+        }
+        if (!tree.rangeSearch(low, high).equals(expected)) {
+            return "rangeSearch(" + low + ", " + high + ") = " + tree.rangeSearch(low, high) + ", expected " + expected;
+        }
+
+        if (size > 0 && (tree.minValue() != reference.firstKey() || tree.maxValue() != reference.lastKey())) {
+            return "min/max = " + tree.minValue() + "/" + tree.maxValue()
+                    + ", expected " + reference.firstKey() + "/" + reference.lastKey();
+        }
+        return null;
+    }
+
+    /**
+     * Verifies the structure of the tree: fixed list lengths, key counts between the bounds,
+     * ordered keys and every leaf at the same depth.
+     *
+     * @return a description of the first violation, or {@code null} if there is none.
+     */
+    private static String checkStructure(B3RTree tree) {
+        int[] leafDepth = {-1};
+        return checkNode(tree, tree.getRoot(), true, Long.MIN_VALUE, Long.MAX_VALUE, 0, leafDepth);
+    }
+
+    /**
+     * Verifies the subtree rooted at the given node. This is a recursive method.
+     *
+     * @param tree the tree the node belongs to, which gives the bounds on keys and children.
+     * @param node the root of the subtree.
+     * @param isRoot whether the node is the root of the tree, which may hold fewer keys.
+     * @param low the lower bound of the keys of the subtree.
+     * @param high the upper bound of the keys of the subtree.
+     * @param depth the depth of the node.
+     * @param leafDepth the depth of the first leaf found, or -1 if none has been found yet.
+     * @return a description of the first violation, or {@code null} if there is none.
+     */
+    private static String checkNode(B3RTree tree, Node node, boolean isRoot, long low, long high, int depth, int[] leafDepth) {
+        if (node.getKeys().size() != tree.upperBoundKeys() || node.getChildren().size() != tree.upperBoundChildren()) {
+            return "node at depth " + depth + " has " + node.getKeys().size() + " key slots and "
+                    + node.getChildren().size() + " child slots";
+        }
+        int minKeys = isRoot ? (node.isLeaf() ? 0 : 1) : tree.lowerBoundKeys();
+        if (node.getSize() < minKeys || node.getSize() > tree.upperBoundKeys()) {
+            return "node at depth " + depth + " has " + node.getSize() + " keys";
+        }
+
+        long previous = low;
+        for (int i = 0; i < node.getSize(); i++) {
+            int key = node.getKeys().get(i);
+            if (key < previous || key > high) {
+                return "key " + key + " out of order at depth " + depth;
+            }
+            previous = key;
+        }
+
+        if (node.isLeaf()) {
+            if (leafDepth[0] == -1) {
+                leafDepth[0] = depth;
+            } else if (leafDepth[0] != depth) {
+                return "leaves at depths " + leafDepth[0] + " and " + depth;
+            }
+            return null;
+        }
+
+        for (int i = 0; i <= node.getSize(); i++) {
+            Node child = node.getChildren().get(i);
+            if (child == null) {
+                return "missing child " + i + " at depth " + depth;
+            }
+            long childLow = i == 0 ? low : node.getKeys().get(i - 1);
+            long childHigh = i == node.getSize() ? high : node.getKeys().get(i);
+            String error = checkNode(tree, child, false, childLow, childHigh, depth + 1, leafDepth);
+            if (error != null) {
+                return error;
+            }
+        }
+        return null;
+    }
+}
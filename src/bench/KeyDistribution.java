@@ -0,0 +1,133 @@
+package bench;
+
+import java.util.SplittableRandom;
+
+/**
+ * This class draws the keys of a synthetic workload from {@code [0, range)} following one of three
+ * distributions: uniform, Zipfian (a few keys are very popular, the smallest ones being the most
+ * popular) or sequential (every key is the previous one plus one, wrapping around at the end of the range).
+ * <p>
+ * The Zipfian keys are generated with the rejection-free method of Gray et al.,
+ * "Quickly Generating Billion-Record Synthetic Databases", also used by YCSB.
+ */
+public class KeyDistribution {
+
+    /** The distributions that can be used. */
+    public enum Type { UNIFORM, ZIPFIAN, SEQUENTIAL }
+
+    /** Default skew of the Zipfian distribution. */
+    public static final double DEFAULT_THETA = 0.99;
+
+    /** The distribution of the keys. */
+    private final Type type;
+
+    /** Keys are drawn from {@code [0, range)}. */
+    private final int range;
+
+    /** The source of randomness. */
+    private final SplittableRandom random;
+
+    /** Next key of the sequential distribution. */
+    private int next;
+
+    /** Skew of the Zipfian distribution. */
+    private final double theta;
+
+    /** Sum of the weights of every key of the Zipfian distribution. */
+    private final double zetaN;
+
+    /** Exponent used to turn a uniform number into a Zipfian key. */
+    private final double alpha;
+
+    /** Correction applied to the uniform number before raising it to {@code alpha}. */
+    private final double eta;
+
+    /**
+     * Constructs a key distribution.
+     *
+     * @param type the distribution of the keys.
+     * @param range the number of distinct keys.
+     * @param seed the seed of the random keys.
+     */
+    public KeyDistribution(Type type, int range, long seed) {
+        if (range <= 0) {
+            throw new IllegalArgumentException("The key range must be positive: " + range);
+        }
+        this.type = type;
+        this.range = range;
+        this.random = new SplittableRandom(seed);
+        this.next = 0;
+        this.theta = DEFAULT_THETA;
+
+        if (type == Type.ZIPFIAN) {
+            double zeta2 = zeta(2, theta);
+            this.zetaN = zeta(range, theta);
+            this.alpha = 1.0 / (1.0 - theta);
+            this.eta = (1.0 - Math.pow(2.0 / range, 1.0 - theta)) / (1.0 - zeta2 / zetaN);
+        } else {
+            this.zetaN = 0;
+            this.alpha = 0;
+            this.eta = 0;
+        }
+    }
+
+    /**
+     * Returns the next key.
+     *
+     * @return a key in {@code [0, range)}.
+     */
+    public int nextKey() {
+        switch (type) {
+            case SEQUENTIAL:
+                int key = next;
+                next = (next + 1) % range;
+                return key;
+            case ZIPFIAN:
+                return nextZipfian();
+            default:
+                return random.nextInt(range);
+        }
+    }
+
+    /**
+     * Returns a random number between 0 (inclusive) and 1 (exclusive), for choosing operations.
+     *
+     * @return the random number.
+     */
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    /**
+     * Draws a Zipfian key, where key {@code k} has a probability proportional to {@code 1 / (k + 1)^theta}.
+     *
+     * @return the key.
+     */
+    private int nextZipfian() {
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, theta)) {
+            return Math.min(1, range - 1);
+        }
+        int key = (int) (range * Math.pow(eta * u - eta + 1.0, alpha));
+        return Math.min(key, range - 1);
+    }
+
+    /**
+     * Computes the generalized harmonic number {@code sum(1 / i^theta)} for {@code i} from 1 to {@code n}.
+     *
+     * @param n the number of terms.
+     * @param theta the exponent.
+     * @return the value of the sum.
+     */
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1.0 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
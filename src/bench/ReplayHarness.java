@@ -0,0 +1,346 @@
+package bench;
+
+import main.*;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * This class replays an operation file against a {@link B3RTree} and measures the latency of every
+ * operation. The file is parsed once up front, replayed a number of warmup iterations to let the JIT
+ * compile the tree, and then replayed the measured iterations, each one on a fresh tree. Latencies are
+ * recorded per kind of operation in {@link LatencyHistogram}s and written as JSON, so the results of
+ * different releases can be compared by a script.
+ * <p>
+ * Understands {@code c}, {@code i n}, {@code d n}, {@code b n}, {@code r a b}, {@code mn}, {@code mx},
+ * {@code nn}, {@code nk} and {@code f [n]}; the commands that only print the tree are skipped.
+ * The minimum and maximum of an empty tree are taken as 0. If an operation fails, the tree can no longer be
+ * trusted: the iteration is aborted at that operation, which is not recorded, no further iterations are run
+ * and the results are marked as not valid.
+ * <p>
+ * Usage: {@code ReplayHarness file=ops.txt [warmup=n] [iterations=n] [out=results.json]}.
+ */
+public class ReplayHarness {
+
+    /** Names of the operations, indexed by their code, as written in the results. */
+    private static final String[] NAMES = {"create", "insert", "delete", "lookup", "range", "min", "max",
+                                           "nodes", "keys", "filter"};
+
+    /** Commands of the operations, indexed by their code, as written in the operation files. */
+    private static final String[] COMMANDS = {"c", "i", "d", "b", "r", "mn", "mx", "nn", "nk", "f"};
+
+    /** Code of each operation of the file. */
+    private final byte[] codes;
+
+    /** First argument of each operation, 0 if it has none. */
+    private final int[] firstArgs;
+
+    /** Second argument of each operation, 0 if it has none. */
+    private final int[] secondArgs;
+
+    /** Latencies of the measured iterations, per kind of operation. */
+    private final LatencyHistogram[] histograms;
+
+    /** Description of the first operation that failed, or {@code null} if none has failed. */
+    private String failure;
+
+    /** Accumulates the results of the operations so that the JIT cannot discard them. */
+    private long checksum;
+
+    /**
+     * Constructs a harness for the operations read from the given reader.
+     *
+     * @param in the source of the operations, one per line.
+     * @throws IOException if the operations cannot be read.
+     */
+    public ReplayHarness(BufferedReader in) throws IOException {
+        ArrayList<String[]> lines = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] data = line.trim().split(" +");
+            if (codeOf(data[0]) >= 0) {
+                lines.add(data);
+            }
+        }
+
+        codes = new byte[lines.size()];
+        firstArgs = new int[lines.size()];
+        secondArgs = new int[lines.size()];
+        for (int j = 0; j < lines.size(); j++) {
+            String[] data = lines.get(j);
+            codes[j] = (byte) codeOf(data[0]);
+            firstArgs[j] = data.length > 1 ? Integer.parseInt(data[1]) : 0;
+            secondArgs[j] = data.length > 2 ? Integer.parseInt(data[2]) : 0;
+        }
+
+        histograms = new LatencyHistogram[NAMES.length];
+        for (int k = 0; k < NAMES.length; k++) {
+            histograms[k] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Returns the number of operations replayed in every iteration.
+     *
+     * @return the number of operations.
+     */
+    public int getOperations() {
+        return codes.length;
+    }
+
+    /**
+     * Returns the description of the first operation that failed.
+     *
+     * @return the description of the failure, or {@code null} if every operation has succeeded.
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    /**
+     * Replays the operations once on a fresh tree. The iteration stops at the first operation that fails,
+     * which is described by {@link #getFailure()}.
+     *
+     * @param measured whether the latencies of this iteration are recorded.
+     * @return the time taken by the whole iteration, in nanoseconds.
+     */
+    public long replay(boolean measured) {
+        B3RTree tree = new B3RTree();
+        long iterationStart = System.nanoTime();
+
+        for (int j = 0; j < codes.length; j++) {
+            int code = codes[j];
+            long start = System.nanoTime();
+            try {
+                if (code == 0) {
+                    tree = new B3RTree(); // 'c' descarta el árbol actual
+                } else {
+                    checksum += apply(tree, code, firstArgs[j], secondArgs[j]);
+                }
+            } catch (RuntimeException | StackOverflowError | OutOfMemoryError e) {
+                tree = null; // El árbol puede haber quedado corrupto
+                failure = "operation " + j + " (" + describe(j) + ") threw " + e;
+                break;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            if (measured) {
+                histograms[code].record(elapsed);
+            }
+        }
+
+        return System.nanoTime() - iterationStart;
+    }
+
+    /**
+     * Returns an operation as it was written in the operation file.
+     *
+     * @param j the index of the operation.
+     * @return the command and its arguments.
+     */
+    private String describe(int j) {
+        switch (codes[j]) {
+            case 1: case 2: case 3: case 9:
+                return COMMANDS[codes[j]] + " " + firstArgs[j];
+            case 4:
+                return COMMANDS[codes[j]] + " " + firstArgs[j] + " " + secondArgs[j];
+            default:
+                return COMMANDS[codes[j]];
+        }
+    }
+
+    /**
+     * Applies a single operation to the tree.
+     *
+     * @param tree the tree.
+     * @param code the code of the operation.
+     * @param first the first argument of the operation.
+     * @param second the second argument of the operation.
+     * @return a value derived from the result of the operation.
+     */
+    private static long apply(B3RTree tree, int code, int first, int second) {
+        switch (code) {
+            case 1:
+                tree.insert(first);
+                return 0;
+            case 2:
+                tree.delete(first);
+                return 0;
+            case 3:
+                return tree.searchValue(first) ? 1 : 0;
+            case 4:
+                return tree.rangeSearch(first, second).size();
+            case 5:
+                return tree.getRoot().getSize() == 0 ? 0 : tree.minValue();
+            case 6:
+                return tree.getRoot().getSize() == 0 ? 0 : tree.maxValue();
+            case 7:
+                return tree.getNumNodes();
+            case 8:
+                return tree.getTotalKeys();
+            case 9:
+                tree.enableFilter(first);
+                return 0;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Writes the results of the measured iterations as a JSON object. If an operation failed, the
+     * results are marked as not valid and the failure is included.
+     *
+     * @param out the destination of the results.
+     * @param workload the name of the operation file.
+     * @param warmup the number of warmup iterations.
+     * @param iterations the number of measured iterations that were completed.
+     * @param elapsed the total time of the measured iterations, in nanoseconds.
+     * @throws IOException if the destination cannot be written.
+     */
+    public void writeResults(Appendable out, String workload, int warmup, int iterations, long elapsed) throws IOException {
+        LatencyHistogram all = new LatencyHistogram();
+        for (int k = 0; k < NAMES.length; k++) {
+            all.add(histograms[k]);
+        }
+
+        out.append("{\n");
+        out.append("  \"workload\": \"").append(escape(workload)).append("\",\n");
+        out.append("  \"valid\": ").append(String.valueOf(failure == null)).append(",\n");
+        if (failure != null) {
+            out.append("  \"failure\": \"").append(escape(failure)).append("\",\n");
+        }
+        out.append("  \"javaVersion\": \"").append(System.getProperty("java.version")).append("\",\n");
+        out.append("  \"operationsPerIteration\": ").append(String.valueOf(codes.length)).append(",\n");
+        out.append("  \"warmupIterations\": ").append(String.valueOf(warmup)).append(",\n");
+        out.append("  \"iterations\": ").append(String.valueOf(iterations)).append(",\n");
+        out.append("  \"elapsedNanos\": ").append(String.valueOf(elapsed)).append(",\n");
+        out.append("  \"throughputOpsPerSec\": ")
+           .append(format(elapsed == 0 ? 0.0 : all.getCount() / (elapsed / 1e9))).append(",\n");
+        out.append("  \"checksum\": ").append(String.valueOf(checksum)).append(",\n");
+        out.append("  \"operations\": {\n");
+        for (int k = 0; k < NAMES.length; k++) {
+            if (histograms[k].getCount() > 0) {
+                writeHistogram(out, NAMES[k], histograms[k]);
+                out.append(",\n");
+            }
+        }
+        writeHistogram(out, "all", all);
+        out.append("\n  }\n");
+        out.append("}\n");
+    }
+
+    /**
+     * Writes the statistics of one histogram as a JSON member.
+     *
+     * @param out the destination of the results.
+     * @param name the name of the member.
+     * @param histogram the latencies.
+     * @throws IOException if the destination cannot be written.
+     */
+    private static void writeHistogram(Appendable out, String name, LatencyHistogram histogram) throws IOException {
+        out.append("    \"").append(name).append("\": {")
+           .append("\"count\": ").append(String.valueOf(histogram.getCount()))
+           .append(", \"meanNanos\": ").append(format(histogram.getMean()))
+           .append(", \"minNanos\": ").append(String.valueOf(histogram.getMin()))
+           .append(", \"p50Nanos\": ").append(String.valueOf(histogram.getValueAtPercentile(50.0)))
+           .append(", \"p90Nanos\": ").append(String.valueOf(histogram.getValueAtPercentile(90.0)))
+           .append(", \"p99Nanos\": ").append(String.valueOf(histogram.getValueAtPercentile(99.0)))
+           .append(", \"p999Nanos\": ").append(String.valueOf(histogram.getValueAtPercentile(99.9)))
+           .append(", \"maxNanos\": ").append(String.valueOf(histogram.getMax()))
+           .append("}");
+    }
+
+    /**
+     * Escapes a string for a JSON string literal.
+     *
+     * @param value the string.
+     * @return the string with its backslashes, quotes and control characters escaped.
+     */
+    private static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats a decimal number for JSON, independently of the default locale.
+     *
+     * @param value the number.
+     * @return the number with one decimal.
+     */
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    /**
+     * Returns the code of a command.
+     *
+     * @param command the command, as written in the operation files.
+     * @return the code of the command, or -1 if it is not replayed.
+     */
+    private static int codeOf(String command) {
+        for (int k = 0; k < COMMANDS.length; k++) {
+            if (COMMANDS[k].equals(command)) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replays an operation file with the options given as arguments and writes the results.
+     *
+     * @param args the options, see the class description.
+     * @throws Exception if the file cannot be read or the results cannot be written.
+     */
+    public static void main(String[] args) throws Exception {
+        HashMap<String, String> options = WorkloadGenerator.parseOptions(args);
+        String fileName = options.get("file");
+        if (fileName == null) {
+            System.out.println("Usage: ReplayHarness file=ops.txt [warmup=n] [iterations=n] [out=results.json]");
+            return;
+        }
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "2"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "5"));
+
+        ReplayHarness harness;
+        try (BufferedReader in = new BufferedReader(new FileReader(fileName))) {
+            harness = new ReplayHarness(in);
+        }
+
+        for (int w = 0; w < warmup && harness.getFailure() == null; w++) {
+            harness.replay(false);
+        }
+        long elapsed = 0;
+        int completed = 0;
+        while (completed < iterations && harness.getFailure() == null) {
+            elapsed += harness.replay(true);
+            if (harness.getFailure() == null) {
+                completed++;
+            }
+        }
+        if (harness.getFailure() != null) {
+            System.err.println("Run aborted, results are not valid: " + harness.getFailure());
+        }
+
+        String outName = options.get("out");
+        if (outName == null) {
+            harness.writeResults(System.out, fileName, warmup, completed, elapsed);
+        } else {
+            try (Writer out = new BufferedWriter(new FileWriter(outName))) {
+                harness.writeResults(out, fileName, warmup, completed, elapsed);
+            }
+            System.out.println("Results written to " + outName);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package bench;
+
+import java.io.*;
+import java.util.HashMap;
+
+/**
+ * This class generates synthetic operation files in the same format as the ones read by {@code App}.
+ * A file starts with {@code c}, optionally followed by a preload of inserts, and then contains a
+ * random mix of inserts ({@code i}), deletes ({@code d}), lookups ({@code b}) and minimum/maximum
+ * queries ({@code mn}/{@code mx}) whose keys follow a {@link KeyDistribution}.
+ * <p>
+ * Usage: {@code WorkloadGenerator out=file [ops=n] [preload=n] [insert=r] [delete=r] [lookup=r] [minmax=r]
+ * [dist=uniform|zipfian|sequential] [range=n] [seed=n]}. The ratios are normalized, so they do not need to add up to 1.
+ */
+public class WorkloadGenerator {
+
+    /** Number of mixed operations written after the preload. */
+    private final int operations;
+
+    /** Number of inserts written before the mixed operations. */
+    private final int preload;
+
+    /** Relative weight of the inserts. */
+    private final double insertRatio;
+
+    /** Relative weight of the deletes. */
+    private final double deleteRatio;
+
+    /** Relative weight of the lookups. */
+    private final double lookupRatio;
+
+    /** Relative weight of the minimum and maximum queries. */
+    private final double minMaxRatio;
+
+    /** The distribution of the keys. */
+    private final KeyDistribution keys;
+
+    /**
+     * Constructs a generator with the given mix of operations.
+     *
+     * @param operations the number of mixed operations.
+     * @param preload the number of inserts written before the mixed operations.
+     * @param insertRatio the relative weight of the inserts.
+     * @param deleteRatio the relative weight of the deletes.
+     * @param lookupRatio the relative weight of the lookups.
+     * @param minMaxRatio the relative weight of the minimum and maximum queries.
+     * @param keys the distribution of the keys.
+     */
+    public WorkloadGenerator(int operations, int preload, double insertRatio, double deleteRatio,
+                             double lookupRatio, double minMaxRatio, KeyDistribution keys) {
+        double total = insertRatio + deleteRatio + lookupRatio + minMaxRatio;
+        if (total <= 0) {
+            throw new IllegalArgumentException("At least one operation ratio must be positive");
+        }
+        this.operations = operations;
+        this.preload = preload;
+        this.insertRatio = insertRatio / total;
+        this.deleteRatio = deleteRatio / total;
+        this.lookupRatio = lookupRatio / total;
+        this.minMaxRatio = minMaxRatio / total;
+        this.keys = keys;
+    }
+
+    /**
+     * Writes the operations, one per line.
+     *
+     * @param out the destination of the operations.
+     * @throws IOException if the destination cannot be written.
+     */
+    public void write(Writer out) throws IOException {
+        out.write("c\n");
+        for (int i = 0; i < preload; i++) {
+            out.write("i " + keys.nextKey() + "\n");
+        }
+
+        for (int i = 0; i < operations; i++) {
+            double choice = keys.nextDouble();
+            if (choice < insertRatio) {
+                out.write("i " + keys.nextKey() + "\n");
+            } else if (choice < insertRatio + deleteRatio) {
+                out.write("d " + keys.nextKey() + "\n");
+            } else if (choice < insertRatio + deleteRatio + lookupRatio) {
+                out.write("b " + keys.nextKey() + "\n");
+            } else {
+                out.write(choice < insertRatio + deleteRatio + lookupRatio + minMaxRatio / 2 ? "mn\n" : "mx\n");
+            }
+        }
+    }
+
+    /**
+     * Parses {@code name=value} arguments.
+     *
+     * @param args the arguments.
+     * @return the values, by name.
+     */
+    static HashMap<String, String> parseOptions(String[] args) {
+        HashMap<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected name=value, found: " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Generates an operation file with the options given as arguments.
+     *
+     * @param args the options, see the class description.
+     * @throws Exception if the file cannot be written.
+     */
+    public static void main(String[] args) throws Exception {
+        HashMap<String, String> options = parseOptions(args);
+        String fileName = options.get("out");
+        if (fileName == null) {
+            System.out.println("Usage: WorkloadGenerator out=file [ops=n] [preload=n] [insert=r] [delete=r] [lookup=r]"
+                    + " [minmax=r] [dist=uniform|zipfian|sequential] [range=n] [seed=n]");
+            return;
+        }
+
+        int ops = Integer.parseInt(options.getOrDefault("ops", "1000000"));
+        int preload = Integer.parseInt(options.getOrDefault("preload", "0"));
+        int range = Integer.parseInt(options.getOrDefault("range", "1000000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        KeyDistribution.Type type = KeyDistribution.Type.valueOf(options.getOrDefault("dist", "uniform").toUpperCase());
+
+        WorkloadGenerator generator = new WorkloadGenerator(ops, preload,
+                Double.parseDouble(options.getOrDefault("insert", "0.4")),
+                Double.parseDouble(options.getOrDefault("delete", "0.1")),
+                Double.parseDouble(options.getOrDefault("lookup", "0.4")),
+                Double.parseDouble(options.getOrDefault("minmax", "0.1")),
+                new KeyDistribution(type, range, seed));
+
+        try (Writer out = new BufferedWriter(new FileWriter(fileName))) {
+            generator.write(out);
+        }
+        System.out.println("Wrote " + (1 + preload + ops) + " operations to " + fileName);
+    }
+}
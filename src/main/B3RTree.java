@@ -1,5 +1,9 @@
 package main;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+
 /**
  * This class implements a B3R-Tree. This represents a BTree of degree 3. Maximum keys allowed = 2.
  */
@@ -11,6 +15,9 @@ public class B3RTree {
     /** The root node of the tree. */
     private Node root;
 
+    /** Optional filter used to answer negative lookups without walking the tree, {@code null} if disabled. */
+    private KeyFilter filter;
+
     /**
      * Constructs a B3RTree with a default degree of 3 and an empty root node.
      */
@@ -128,86 +135,159 @@ public class B3RTree {
 
 
     /**
-     * Inserts a key into the B3RTree. If the root node is full, it splits and a new root is created.
+     * Inserts a key into the B3RTree. The key is added to a leaf and full nodes are split on the way
+     * back up; if the root ends up with too many keys, it splits and a new root is created.
      *
      * @param key the key to be inserted.
      */
     public void insert(int key) {
-        Node r = root;
-        if (r.getSize() == upperBoundKeys()) {
+        if (filter != null) {
+            filter.add(key);
+        }
+
+        insertKey(root, key);
+        if (root.getSize() > upperBoundKeys()) {
+            Node r = root;
             Node s = new Node(degree);
             root = s;
             s.setLeaf(false);
             s.setSize(0);
             s.getChildren().set(0, r);
             splitChild(s, 0, r);
-            insertNonFull(s, key);
-        } else {
-            insertNonFull(r, key);
+        }
+
+        if (filter != null && filter.getCount() > filter.getCapacity()) {
+            rebuildFilter(); // El filtro se ha saturado, se redimensiona
         }
     }
 
     /**
-     * Splits a child node that is full into two nodes, promoting a key from the child to the parent node.
+     * Inserts several keys at once. If the filter is enabled and the batch holds at least as many
+     * keys as the filter, the filter is not updated key by key but rebuilt once after all the keys
+     * have been inserted. Smaller batches update it key by key, as {@link #insert(int)} does,
+     * since a rebuild walks the whole tree.
      *
-     * @param parent the parent node.
-     * @param index the index of the child to split.
-     * @param child the child node to split.
+     * @param keys the keys to be inserted.
      */
-    private void splitChild(Node parent, int index, Node child) {
-        Node sibling = new Node(degree);
-        sibling.setLeaf(child.isLeaf());
-        sibling.setSize(upperBoundKeys() - lowerBoundKeys() - 1);
-
-        for (int j = 0; j < sibling.getSize(); j++) {
-            sibling.getKeys().set(j, child.getKeys().get(j + lowerBoundKeys() + 1));
+    public void insertAll(int... keys) {
+        if (filter == null || keys.length < filter.getCount()) {
+            for (int key : keys) {
+                insert(key);
+            }
+            return;
         }
 
-        if (!child.isLeaf()) {
-            for (int j = 0; j < sibling.getSize() + 1; j++) {
-                sibling.getChildren().set(j, child.getChildren().get(j + lowerBoundKeys() + 1));
+        KeyFilter current = filter;
+        filter = null;
+        try {
+            for (int key : keys) {
+                insert(key);
             }
+        } finally {
+            filter = current;
+            rebuildFilter();
         }
-
-        child.setSize(lowerBoundKeys());
-        parent.getChildren().add(index + 1, sibling);
-        parent.getChildren().remove(degree);
-
-        parent.getKeys().add(index, child.getKeys().get(lowerBoundKeys()));
-        parent.getKeys().remove(upperBoundKeys());
-
-        parent.setSize(parent.getSize() + 1);
     }
 
     /**
-     * Inserts a key into a node that is not full. This is a recursive method.
+     * Inserts a key into the subtree rooted at the given node. This is a recursive method.
+     * If the node was full it is left with one key too many, and the caller must split it.
      *
-     * @param node the node where the key should be inserted.
+     * @param node the root of the subtree where the key should be inserted.
      * @param key the key to be inserted.
      */
-    private void insertNonFull(Node node, int key) {
+    private void insertKey(Node node, int key) {
         int i = node.getSize() - 1;
+        while (i >= 0 && key < node.getKeys().get(i)) {
+            i--;
+        }
+        i++;
+
         if (node.isLeaf()) {
-            while (i >= 0 && key < node.getKeys().get(i)) {
-                i--;
-            }
-            node.getKeys().add(i + 1, key);
-            node.getKeys().remove(upperBoundKeys());
-            node.setSize(node.getSize() + 1);
+            insertAt(node, i, key, null);
         } else {
-            while (i >= 0 && key < node.getKeys().get(i)) {
-                i--;
+            Node child = node.getChildren().get(i);
+            insertKey(child, key);
+            if (child.getSize() > upperBoundKeys()) {
+                splitChild(node, i, child);
             }
-            i++;
+        }
+    }
+
+    /**
+     * Inserts a key at the given position of a node, together with the child that follows it.
+     * Keys and children are always stored in lists of fixed length (degree - 1 and degree); only
+     * a node that was already full grows one extra slot, until its parent splits it.
+     *
+     * @param node the node where the key is inserted.
+     * @param idx the position of the new key.
+     * @param key the key to be inserted.
+     * @param rightChild the child placed to the right of the new key, {@code null} in leaves.
+     */
+    private void insertAt(Node node, int idx, int key, Node rightChild) {
+        boolean full = node.getSize() == upperBoundKeys();
+        node.getKeys().add(idx, key);
+        node.getChildren().add(idx + 1, rightChild);
+        if (!full) {
+            node.getKeys().remove(upperBoundKeys());
+            node.getChildren().remove(upperBoundChildren());
+        }
+        node.setSize(node.getSize() + 1);
+    }
+
+    /**
+     * Removes the key at the given position of a node, together with the child that follows it,
+     * keeping the lists of the node at their fixed length.
+     *
+     * @param node the node where the key is removed.
+     * @param idx the position of the key.
+     */
+    private void removeAt(Node node, int idx) {
+        node.getKeys().remove(idx);
+        node.getKeys().add(0);
+        node.getChildren().remove(idx + 1);
+        node.getChildren().add(null);
+        node.setSize(node.getSize() - 1);
+    }
+
+    /**
+     * Splits a child node that has one key too many into two nodes, promoting its middle key to the parent node.
+     * Both halves keep at least {@link #lowerBoundKeys()} keys.
+     *
+     * @param parent the parent node.
+     * @param index the index of the child to split.
+     * @param child the child node to split.
+     */
+    private void splitChild(Node parent, int index, Node child) {
+        int mid = degree / 2;
+        int middleKey = child.getKeys().get(mid);
+
+        Node sibling = new Node(degree);
+        sibling.setLeaf(child.isLeaf());
+        sibling.setSize(degree - mid - 1);
+
+        for (int j = 0; j < sibling.getSize(); j++) {
+            sibling.getKeys().set(j, child.getKeys().get(j + mid + 1));
+        }
 
-            if (node.getChildren().get(i).getSize() == upperBoundKeys()) {
-                splitChild(node, i, node.getChildren().get(i));
-                if (key > node.getKeys().get(i)) {
-                    i++;
-                }
+        if (!child.isLeaf()) {
+            for (int j = 0; j < sibling.getSize() + 1; j++) {
+                sibling.getChildren().set(j, child.getChildren().get(j + mid + 1));
             }
-            insertNonFull(node.getChildren().get(i), key);
         }
+
+        // Devolver el hijo a su tamaño fijo y limpiar las posiciones que pasan al hermano
+        child.getKeys().remove(upperBoundKeys());
+        child.getChildren().remove(upperBoundChildren());
+        for (int j = mid; j < upperBoundKeys(); j++) {
+            child.getKeys().set(j, 0);
+        }
+        for (int j = mid + 1; j < upperBoundChildren(); j++) {
+            child.getChildren().set(j, null);
+        }
+        child.setSize(mid);
+
+        insertAt(parent, index, middleKey, sibling);
     }
 
     /**
@@ -215,73 +295,54 @@ public class B3RTree {
      * If the root becomes empty and is not a leaf, the root is replaced by its first child to reduce the height.
      *
      * @param key the key to delete from the B-tree
+     * @return {@code true} if the key was found and removed, {@code false} if it was not in the tree
      */
-    public void delete(int key) {
-        deleteKey(root, key);
+    public boolean delete(int key) {
+        boolean removed = deleteKey(root, key);
+        if (removed && filter != null) {
+            filter.remove(key);
+        }
         if (root.getSize() == 0 && !root.isLeaf()) {
             root = root.getChildren().get(0); // Reducir la altura si se vacía la raíz
         }
+        return removed;
     }
 
     /**
-     * Recursively deletes a key from the subtree rooted at the given node.
+     * Recursively deletes a key from the subtree rooted at the given node. A key found in an
+     * internal node is replaced by its predecessor, which is then deleted from the left subtree.
+     * Children left with too few keys are fixed on the way back up.
      *
      * @param node the current node to inspect
      * @param key  the key to delete
+     * @return {@code true} if the key was found and removed, {@code false} otherwise
      */
-    private void deleteKey(Node node, int key) {
+    private boolean deleteKey(Node node, int key) {
         int idx = findKeyIndex(node, key);
+        boolean found = idx < node.getSize() && node.getKeys().get(idx) == key;
 
-        if (idx < node.getSize() && node.getKeys().get(idx) == key) {
-            if (node.isLeaf()) {
-                node.getKeys().remove(idx);
-                node.getKeys().add(upperBoundKeys() - 1, 0); // mantener tamaño
-                node.setSize(node.getSize() - 1);
-            } else {
-                deleteInternalNodeKey(node, key, idx);
-            }
-        } else {
-            if (node.isLeaf()) return;
-
-            boolean flag = (idx == node.getSize());
-            Node child = node.getChildren().get(idx);
-
-            if (child.getSize() < lowerBoundKeys()) {
-                fill(node, idx);
-            }
-
-            if (flag && idx > node.getSize()) {
-                deleteKey(node.getChildren().get(idx - 1), key);
-            } else {
-                deleteKey(node.getChildren().get(idx), key);
+        if (node.isLeaf()) {
+            if (found) {
+                removeAt(node, idx);
             }
+            return found;
         }
-    }
-
-    /**
-     * Deletes a key from an internal node by replacing it with its predecessor or successor,
-     * or by merging child nodes if necessary.
-     *
-     * @param node the internal node containing the key
-     * @param key  the key to delete
-     * @param idx  the index of the key in the node
-     */
-    private void deleteInternalNodeKey(Node node, int key, int idx) {
-        Node predChild = node.getChildren().get(idx);
-        Node succChild = node.getChildren().get(idx + 1);
 
-        if (predChild.getSize() >= lowerBoundKeys()) {
-            int pred = getPredecessor(predChild);
+        Node child = node.getChildren().get(idx);
+        boolean removed;
+        if (found) {
+            int pred = getPredecessor(child);
             node.getKeys().set(idx, pred);
-            deleteKey(predChild, pred);
-        } else if (succChild.getSize() >= lowerBoundKeys()) {
-            int succ = getSuccessor(succChild);
-            node.getKeys().set(idx, succ);
-            deleteKey(succChild, succ);
+            deleteKey(child, pred);
+            removed = true;
         } else {
-            merge(node, idx);
-            deleteKey(predChild, key);
+            removed = deleteKey(child, key);
         }
+
+        if (child.getSize() < lowerBoundKeys()) {
+            fill(node, idx);
+        }
+        return removed;
     }
 
     /**
@@ -313,29 +374,17 @@ public class B3RTree {
     }
 
     /**
-     * Retrieves the successor key of a node, which is the minimum key in the right subtree.
-     *
-     * @param node the node from which to find the successor
-     * @return the successor key
-     */
-    private int getSuccessor(Node node) {
-        while (!node.isLeaf()) {
-            node = node.getChildren().get(0);
-        }
-        return node.getKeys().get(0);
-    }
-
-    /**
-     * Ensures that the child node at index {@code idx} has enough keys by borrowing from a sibling
-     * or merging siblings if necessary.
+     * Gives back enough keys to the child node at index {@code idx}, which has fallen below
+     * {@link #lowerBoundKeys()}, by borrowing from a sibling that can spare a key or, if none can,
+     * by merging it with a sibling.
      *
      * @param parent the parent node
      * @param idx    the index of the child node
      */
     private void fill(Node parent, int idx) {
-        if (idx != 0 && parent.getChildren().get(idx - 1).getSize() >= lowerBoundKeys()) {
+        if (idx != 0 && parent.getChildren().get(idx - 1).getSize() > lowerBoundKeys()) {
             borrowFromPrev(parent, idx);
-        } else if (idx != parent.getSize() && parent.getChildren().get(idx + 1).getSize() >= lowerBoundKeys()) {
+        } else if (idx != parent.getSize() && parent.getChildren().get(idx + 1).getSize() > lowerBoundKeys()) {
             borrowFromNext(parent, idx);
         } else {
             if (idx != parent.getSize()) {
@@ -355,16 +404,18 @@ public class B3RTree {
     private void borrowFromPrev(Node parent, int idx) {
         Node child = parent.getChildren().get(idx);
         Node sibling = parent.getChildren().get(idx - 1);
+        int last = sibling.getSize() - 1;
 
         child.getKeys().add(0, parent.getKeys().get(idx - 1));
-        parent.getKeys().set(idx - 1, sibling.getKeys().remove(sibling.getSize() - 1));
-
-        if (!sibling.isLeaf()) {
-            child.getChildren().add(0, sibling.getChildren().remove(sibling.getSize()));
-        }
-
-        sibling.setSize(sibling.getSize() - 1);
+        child.getKeys().remove(upperBoundKeys());
+        child.getChildren().add(0, sibling.getChildren().get(last + 1));
+        child.getChildren().remove(upperBoundChildren());
         child.setSize(child.getSize() + 1);
+
+        parent.getKeys().set(idx - 1, sibling.getKeys().get(last));
+        sibling.getKeys().set(last, 0);
+        sibling.getChildren().set(last + 1, null);
+        sibling.setSize(last);
     }
 
     /**
@@ -377,19 +428,21 @@ public class B3RTree {
         Node child = parent.getChildren().get(idx);
         Node sibling = parent.getChildren().get(idx + 1);
 
-        child.getKeys().add(parent.getKeys().get(idx));
-        parent.getKeys().set(idx, sibling.getKeys().remove(0));
-
-        if (!sibling.isLeaf()) {
-            child.getChildren().add(sibling.getChildren().remove(0));
-        }
+        child.getKeys().set(child.getSize(), parent.getKeys().get(idx));
+        child.getChildren().set(child.getSize() + 1, sibling.getChildren().get(0));
+        child.setSize(child.getSize() + 1);
 
+        parent.getKeys().set(idx, sibling.getKeys().get(0));
+        sibling.getKeys().remove(0);
+        sibling.getKeys().add(0);
+        sibling.getChildren().remove(0);
+        sibling.getChildren().add(null);
         sibling.setSize(sibling.getSize() - 1);
-        child.setSize(child.getSize() + 1);
     }
 
     /**
-     * Merges the child node at index {@code idx} with its right sibling, and adjusts the parent node.
+     * Merges the child node at index {@code idx} with its right sibling and the key that separates
+     * them, and removes both the key and the sibling from the parent node.
      *
      * @param parent the parent node
      * @param idx    the index of the child node to merge
@@ -397,34 +450,118 @@ public class B3RTree {
     private void merge(Node parent, int idx) {
         Node child = parent.getChildren().get(idx);
         Node sibling = parent.getChildren().get(idx + 1);
+        int size = child.getSize();
 
-        child.getKeys().add(parent.getKeys().remove(idx));
-        child.setSize(child.getSize() + 1);
-
+        child.getKeys().set(size, parent.getKeys().get(idx));
         for (int i = 0; i < sibling.getSize(); i++) {
-            child.getKeys().add(sibling.getKeys().get(i));
-            child.setSize(child.getSize() + 1);
+            child.getKeys().set(size + 1 + i, sibling.getKeys().get(i));
         }
-
-        if (!child.isLeaf()) {
-            for (int i = 0; i <= sibling.getSize(); i++) {
-                child.getChildren().add(sibling.getChildren().get(i));
-            }
+        for (int i = 0; i <= sibling.getSize(); i++) {
+            child.getChildren().set(size + 1 + i, sibling.getChildren().get(i));
         }
+        child.setSize(size + 1 + sibling.getSize());
 
-        parent.getChildren().remove(idx + 1);
-        parent.setSize(parent.getSize() - 1);
+        removeAt(parent, idx);
     }
 
 
     /**
-     * Searches for a specific value in the tree.
+     * Enables the negative-lookup filter, sized for the given number of keys or for the
+     * keys already stored, whichever is larger, and fills it with the current keys.
+     *
+     * @param expectedKeys the number of keys the filter is expected to hold.
+     */
+    public void enableFilter(int expectedKeys) {
+        filter = new KeyFilter(Math.max(expectedKeys, getTotalKeys()));
+        addKeysHelper(root, filter);
+    }
+
+    /**
+     * Disables the negative-lookup filter.
+     */
+    public void disableFilter() {
+        filter = null;
+    }
+
+    /**
+     * Returns the negative-lookup filter, which exposes its false-positive metrics.
+     *
+     * @return the filter, or {@code null} if it is disabled.
+     */
+    public KeyFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Rebuilds the negative-lookup filter from the keys currently stored in the tree,
+     * growing it if the tree holds more keys than it was sized for. The probe, miss and false-positive
+     * counters are carried over to the new filter. Does nothing if the filter is disabled.
+     */
+    public void rebuildFilter() {
+        if (filter == null) {
+            return;
+        }
+        int totalKeys = getTotalKeys();
+        int capacity = filter.getCapacity();
+        while (capacity < totalKeys) {
+            capacity *= 2;
+        }
+        KeyFilter rebuilt = new KeyFilter(capacity);
+        rebuilt.copyStats(filter);
+        addKeysHelper(root, rebuilt);
+        filter = rebuilt;
+    }
+
+    /**
+     * Helper method for recursively adding the keys of the tree to a filter.
+     *
+     * @param current the current node being traversed.
+     * @param target the filter where the keys are added.
+     */
+    private void addKeysHelper(Node current, KeyFilter target) {
+        if (current == null) {
+            return;
+        }
+
+        for (int i = 0; i < current.getSize(); i++) {
+            target.add(current.getKeys().get(i));
+        }
+        if (!current.isLeaf()) {
+            for (int i = 0; i <= current.getSize(); i++) {
+                addKeysHelper(current.getChildren().get(i), target);
+            }
+        }
+    }
+
+    /**
+     * Searches for a specific value in the tree. If the filter is enabled, definite misses
+     * are answered by the filter without walking the tree.
      * 
      * @param value the value to search for.
      * @return {@code true} if the value is found in the tree, {@code false} otherwise.
      * @throws NullPointerException if the tree's root or its children are not properly initialized.
      */
     public boolean searchValue(int value){
+        if (filter != null) {
+            if (!filter.mightContain(value)) {
+                return false;
+            }
+            if (!searchTree(value)) {
+                filter.recordFalsePositive();
+                return false;
+            }
+            return true;
+        }
+        return searchTree(value);
+    }
+
+    /**
+     * Searches for a specific value walking the tree from the root.
+     *
+     * @param value the value to search for.
+     * @return {@code true} if the value is found in the tree, {@code false} otherwise.
+     */
+    private boolean searchTree(int value) {
         Node current = this.getRoot(); 
         int index;
     
@@ -451,6 +588,53 @@ public class B3RTree {
         return false; 
     }
 
+    /**
+     * Retrieves, in ascending order, every key stored in the tree between two bounds (both inclusive).
+     *
+     * @param low the lower bound of the range.
+     * @param high the upper bound of the range.
+     * @return the keys within the range, empty if there are none.
+     */
+    public ArrayList<Integer> rangeSearch(int low, int high) {
+        ArrayList<Integer> result = new ArrayList<>();
+        if (low <= high) {
+            rangeSearchHelper(root, low, high, result);
+        }
+        return result;
+    }
+
+    /**
+     * Helper method for recursively collecting the keys of a range, skipping the subtrees
+     * that lie completely outside of it.
+     *
+     * @param current the current node being traversed.
+     * @param low the lower bound of the range.
+     * @param high the upper bound of the range.
+     * @param result the list where the keys are collected.
+     */
+    private void rangeSearchHelper(Node current, int low, int high, ArrayList<Integer> result) {
+        if (current == null) {
+            return;
+        }
+
+        for (int i = 0; i < current.getSize(); i++) {
+            int key = current.getKeys().get(i);
+            if (!current.isLeaf() && low <= key) {
+                rangeSearchHelper(current.getChildren().get(i), low, high, result);
+            }
+            if (key > high) {
+                return;
+            }
+            if (key >= low) {
+                result.add(key);
+            }
+        }
+
+        if (!current.isLeaf()) {
+            rangeSearchHelper(current.getChildren().get(current.getSize()), low, high, result);
+        }
+    }
+
     /**
      * Retrieves the maximum value stored in the tree.
      * 
@@ -468,7 +652,7 @@ public class B3RTree {
             current = current.getChildren().get(current.getSize());
         }
 
-        return current.getKeys().get(current.getSize());
+        return current.getKeys().get(current.getSize() - 1);
     }
 
     /**
@@ -493,6 +677,7 @@ public class B3RTree {
 
     /**
      * Returns a string representation of the tree, printing keys and levels.
+     * Large trees should rather be streamed with {@link TreeRenderer#writeTree(Appendable)}.
      *
      * @return a string representation of the tree.
      */
@@ -502,7 +687,7 @@ public class B3RTree {
     }
 
     /**
-     * Helper method to recursively print the tree structure.
+     * Helper method to print the tree structure starting from a given node.
      *
      * @param currentNode the current node to print.
      * @param depth the current depth in the tree (used for indentation).
@@ -510,26 +695,11 @@ public class B3RTree {
      */
     public String printTreeHelper(Node currentNode, int depth) {
         StringBuilder result = new StringBuilder();
-        String indent = " ".repeat(depth * 4);
-
-        for (int i = 0; i < currentNode.getSize(); i++) {
-            if (!currentNode.isLeaf() && currentNode.getChildren().get(i) != null) {
-                result.append(printTreeHelper(currentNode.getChildren().get(i), depth + 1));
-            }
-            if (currentNode.getKeys().get(i) != null) {
-                result.append(indent)
-                      .append("Key: ")
-                      .append(currentNode.getKeys().get(i))
-                      .append(", Level: ")
-                      .append(depth)
-                      .append("\n");
-            }
+        try {
+            new TreeRenderer(this).writeSubtree(result, currentNode, depth);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Un StringBuilder nunca lanza IOException
         }
-
-        if (!currentNode.isLeaf()) {
-            result.append(printTreeHelper(currentNode.getChildren().get(currentNode.getSize()), depth + 1));
-        }
-
         return result.toString();
     }
-}
\ No newline at end of file
+}
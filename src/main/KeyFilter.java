@@ -0,0 +1,292 @@
+package main;
+
+/**
+ * This class implements an approximate-membership filter that can be kept alongside a
+ * {@link B3RTree} to answer definite misses without walking down to a leaf.
+ * It is a blocked counting Bloom filter: every key is mapped to a single block of 64 contiguous
+ * one-byte counters and increments a fixed number of counters inside it, so a lookup reads one
+ * 64-byte region (at most two cache lines, since the array is not aligned to them) instead of
+ * several random positions of the whole array.
+ * Using counters instead of bits allows keys to be removed again when they are deleted from the tree.
+ */
+public class KeyFilter {
+
+    /** Number of counters in a block, the size of a cache line so that a block spans at most two of them. */
+    private static final int BLOCK_SIZE = 64;
+
+    /** Number of counters touched by each key inside its block. */
+    private static final int HASHES = 5;
+
+    /** Number of counters reserved per expected key. */
+    private static final int COUNTERS_PER_KEY = 10;
+
+    /**
+     * Number of ways of splitting the {@code HASHES} positions of a key into {@code d} non-empty groups
+     * (Stirling numbers of the second kind), indexed by {@code d}.
+     */
+    private static final int[] PARTITIONS = {0, 1, 15, 25, 10, 1};
+
+    /** Value at which a counter saturates and is never decremented again. */
+    private static final int MAX_COUNT = 0xFF;
+
+    /** Counters of every block, stored contiguously. */
+    private final byte[] counters;
+
+    /** The number of blocks in the filter. */
+    private final int numBlocks;
+
+    /** The number of keys the filter was sized for. */
+    private final int capacity;
+
+    /** The number of keys currently represented in the filter. */
+    private int count;
+
+    /** Number of lookups answered by the filter. */
+    private long probes;
+
+    /** Number of lookups the filter rejected as definite misses. */
+    private long definiteMisses;
+
+    /** Number of lookups the filter let through for keys that were not in the tree. */
+    private long falsePositives;
+
+    /**
+     * Constructs an empty filter sized for the given number of keys.
+     *
+     * @param expectedKeys the number of keys the filter is expected to hold.
+     */
+    public KeyFilter(int expectedKeys) {
+        this.capacity = Math.max(1, expectedKeys);
+        long totalCounters = (long) capacity * COUNTERS_PER_KEY;
+        this.numBlocks = (int) Math.min(Integer.MAX_VALUE / BLOCK_SIZE, (totalCounters + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        this.counters = new byte[numBlocks * BLOCK_SIZE];
+        this.count = 0;
+    }
+
+    /**
+     * Adds a key to the filter.
+     *
+     * @param key the key to add.
+     */
+    public void add(int key) {
+        long hash = hash(key);
+        int base = blockOffset(hash);
+        for (int i = 0; i < HASHES; i++) {
+            int pos = base + counterIndex(hash, i);
+            int value = counters[pos] & 0xFF;
+            if (value < MAX_COUNT) {
+                counters[pos] = (byte) (value + 1);
+            }
+        }
+        count++;
+    }
+
+    /**
+     * Removes a key from the filter. The key must have been added before, otherwise
+     * the filter could start reporting false negatives.
+     *
+     * @param key the key to remove.
+     */
+    public void remove(int key) {
+        long hash = hash(key);
+        int base = blockOffset(hash);
+        for (int i = 0; i < HASHES; i++) {
+            int pos = base + counterIndex(hash, i);
+            int value = counters[pos] & 0xFF;
+            if (value > 0 && value < MAX_COUNT) {
+                counters[pos] = (byte) (value - 1);
+            }
+        }
+        count--;
+    }
+
+    /**
+     * Checks whether a key may be present. A {@code false} result is definite,
+     * a {@code true} result may be a false positive.
+     *
+     * @param key the key to check.
+     * @return {@code false} if the key is definitely not present, {@code true} otherwise.
+     */
+    public boolean mightContain(int key) {
+        probes++;
+        long hash = hash(key);
+        int base = blockOffset(hash);
+        for (int i = 0; i < HASHES; i++) {
+            if (counters[base + counterIndex(hash, i)] == 0) {
+                definiteMisses++;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records that a lookup let through by {@link #mightContain(int)} did not find the key.
+     */
+    public void recordFalsePositive() {
+        falsePositives++;
+    }
+
+    /**
+     * Returns the number of keys currently represented in the filter.
+     *
+     * @return the number of keys.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of keys the filter was sized for.
+     *
+     * @return the capacity of the filter.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of lookups answered by the filter.
+     *
+     * @return the number of probes.
+     */
+    public long getProbes() {
+        return probes;
+    }
+
+    /**
+     * Returns the number of lookups rejected as definite misses.
+     *
+     * @return the number of definite misses.
+     */
+    public long getDefiniteMisses() {
+        return definiteMisses;
+    }
+
+    /**
+     * Returns the number of lookups that passed the filter but were not found in the tree.
+     *
+     * @return the number of false positives.
+     */
+    public long getFalsePositives() {
+        return falsePositives;
+    }
+
+    /**
+     * Returns the false-positive rate observed so far, that is, the fraction of lookups
+     * for absent keys that the filter failed to reject.
+     *
+     * @return the observed false-positive rate, or 0 if no absent key has been looked up.
+     */
+    public double getObservedFalsePositiveRate() {
+        long negatives = definiteMisses + falsePositives;
+        return negatives == 0 ? 0.0 : (double) falsePositives / negatives;
+    }
+
+    /**
+     * Returns the theoretical false-positive rate for the current number of keys, taking the blocked
+     * layout into account. The number of keys of a block follows a Poisson distribution of mean
+     * {@code n / blocks}, and the positions of a key are drawn independently inside its block, so two
+     * of them may fall on the same counter. For each load, the probability that every distinct counter
+     * probed by an absent key is set is computed by inclusion-exclusion; counter saturation is ignored.
+     *
+     * @return the expected false-positive rate.
+     */
+    public double getExpectedFalsePositiveRate() {
+        double mean = (double) Math.max(0, count) / numBlocks;
+        int maxLoad = (int) Math.ceil(mean + 12 * Math.sqrt(mean) + 12);
+
+        double rate = 0.0;
+        double loadProbability = Math.exp(-mean); // P(carga = 0)
+        for (int load = 0; load <= maxLoad; load++) {
+            rate += loadProbability * blockFalsePositiveRate(load);
+            loadProbability *= mean / (load + 1);
+        }
+        return rate;
+    }
+
+    /**
+     * Returns the probability that an absent key passes a block holding the given number of keys.
+     *
+     * @param load the number of keys of the block.
+     * @return the false-positive rate of the block.
+     */
+    private static double blockFalsePositiveRate(int load) {
+        int draws = HASHES * load;
+        double rate = 0.0;
+        double distinctWays = 1.0; // Formas ordenadas de elegir d contadores distintos
+        for (int d = 1; d <= HASHES; d++) {
+            distinctWays *= BLOCK_SIZE - d + 1;
+            double distinctProbability = PARTITIONS[d] * distinctWays / Math.pow(BLOCK_SIZE, HASHES);
+
+            // P(los d contadores están a distinto de cero) por inclusión-exclusión
+            double allSet = 0.0;
+            double binomial = 1.0;
+            for (int i = 0; i <= d; i++) {
+                allSet += (i % 2 == 0 ? binomial : -binomial) * Math.pow(1.0 - (double) i / BLOCK_SIZE, draws);
+                binomial = binomial * (d - i) / (i + 1);
+            }
+            rate += distinctProbability * allSet;
+        }
+        return rate;
+    }
+
+    /**
+     * Copies the probe, miss and false-positive counters of another filter, so that the metrics
+     * survive when the tree replaces its filter by a rebuilt one.
+     *
+     * @param previous the filter whose counters are copied.
+     */
+    void copyStats(KeyFilter previous) {
+        probes = previous.probes;
+        definiteMisses = previous.definiteMisses;
+        falsePositives = previous.falsePositives;
+    }
+
+    /**
+     * Resets the probe, miss and false-positive counters.
+     */
+    public void resetStats() {
+        probes = 0;
+        definiteMisses = 0;
+        falsePositives = 0;
+    }
+
+    /**
+     * Mixes the bits of a key (finalizer of MurmurHash3) so that consecutive keys spread over the filter.
+     *
+     * @param key the key to hash.
+     * @return a 64-bit hash of the key.
+     */
+    private static long hash(int key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Returns the position of the first counter of the block selected by the high half of the hash.
+     *
+     * @param hash the hash of the key.
+     * @return the offset of the block in the counters array.
+     */
+    private int blockOffset(long hash) {
+        int block = (int) (((hash >>> 32) * numBlocks) >>> 32);
+        return block * BLOCK_SIZE;
+    }
+
+    /**
+     * Returns the position inside the block of the {@code i}-th counter, taken from the low half of the hash.
+     *
+     * @param hash the hash of the key.
+     * @param i the index of the counter, between 0 and {@code HASHES - 1}.
+     * @return the position of the counter inside its block.
+     */
+    private static int counterIndex(long hash, int i) {
+        return (int) (hash >>> (i * 6)) & (BLOCK_SIZE - 1);
+    }
+}
@@ -0,0 +1,179 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * This class implements a latency histogram in the style of HdrHistogram. Values are grouped in
+ * buckets whose width grows with the magnitude of the value, so every recorded value is kept with
+ * a relative error below 1/64 (about 1.6%) using a fixed amount of memory, whatever the range of
+ * the latencies. Recording a value only increments a counter.
+ */
+public class LatencyHistogram {
+
+    /** Number of linear buckets for the smallest values, and of sub-buckets per power of two. */
+    private static final int SUB_BUCKETS = 128;
+
+    /** Half of {@code SUB_BUCKETS}: the sub-buckets of every power of two above the linear range. */
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    /** Number of bits of {@code HALF_SUB_BUCKETS}. */
+    private static final int HALF_SUB_BUCKET_BITS = 6;
+
+    /** Number of buckets needed to cover every non-negative {@code long}. */
+    private static final int BUCKETS = SUB_BUCKETS + (63 - HALF_SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    /** Number of values recorded in each bucket. */
+    private final long[] counts;
+
+    /** Number of values recorded. */
+    private long totalCount;
+
+    /** Sum of the values recorded, used for the mean. */
+    private double sum;
+
+    /** Smallest value recorded. */
+    private long min;
+
+    /** Largest value recorded. */
+    private long max;
+
+    /**
+     * Constructs an empty histogram.
+     */
+    public LatencyHistogram() {
+        this.counts = new long[BUCKETS];
+        reset();
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value the value, usually a latency in nanoseconds.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[bucketIndex(value)]++;
+        totalCount++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds every value recorded in another histogram to this one.
+     *
+     * @param other the histogram to add.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Removes every recorded value.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return the count of values.
+     */
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the mean of the values recorded.
+     *
+     * @return the mean, or 0 if the histogram is empty.
+     */
+    public double getMean() {
+        return totalCount == 0 ? 0.0 : sum / totalCount;
+    }
+
+    /**
+     * Returns the smallest value recorded.
+     *
+     * @return the minimum, or 0 if the histogram is empty.
+     */
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return the maximum, or 0 if the histogram is empty.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall. The result
+     * is the upper bound of the bucket holding that value, capped by the maximum recorded.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the value at the percentile, or 0 if the histogram is empty.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestValueInBucket(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the bucket of a value. Values below {@code SUB_BUCKETS} have a bucket each; above that,
+     * every power of two is split into {@code HALF_SUB_BUCKETS} buckets of equal width.
+     *
+     * @param value the non-negative value.
+     * @return the index of its bucket.
+     */
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - HALF_SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift); // Entre HALF_SUB_BUCKETS y SUB_BUCKETS - 1
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (subBucket - HALF_SUB_BUCKETS);
+    }
+
+    /**
+     * Returns the largest value that falls in the given bucket.
+     *
+     * @param index the index of the bucket.
+     * @return the upper bound of the bucket.
+     */
+    private static long highestValueInBucket(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        long upper = ((subBucket + 1) << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
@@ -0,0 +1,221 @@
+package main;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+/**
+ * This class renders a {@link B3RTree} as text, streaming the output to an {@link Appendable}
+ * (a {@code Writer}, a {@code StringBuilder}, ...) instead of building it in memory.
+ * The tree is traversed iteratively with an explicit stack, so the memory used while rendering
+ * only depends on the height of the tree, not on the number of keys.
+ * <p>
+ * Three formats are available: the full dump used by {@link B3RTree#toString()}, a summary
+ * limited to the first levels of the tree, and a DOT graph that can be drawn with Graphviz.
+ */
+public class TreeRenderer {
+
+    /** Number of spaces used to indent each level. */
+    private static final int INDENT = 4;
+
+    /** The tree to render. */
+    private final B3RTree tree;
+
+    /**
+     * Constructs a renderer for the given tree.
+     *
+     * @param tree the tree to render.
+     */
+    public TreeRenderer(B3RTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Writes every key of the tree in order, one per line, indented by its level.
+     *
+     * @param out the destination of the output.
+     * @throws IOException if the destination cannot be written.
+     */
+    public void writeTree(Appendable out) throws IOException {
+        writeSubtree(out, tree.getRoot(), 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Writes the keys of the subtree rooted at the given node in order, one per line, indented by their level.
+     *
+     * @param out the destination of the output.
+     * @param node the root of the subtree.
+     * @param depth the level of {@code node} in the tree.
+     * @throws IOException if the destination cannot be written.
+     */
+    public void writeSubtree(Appendable out, Node node, int depth) throws IOException {
+        writeSubtree(out, node, depth, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Writes the first levels of the tree, down to {@code maxDepth}. Every subtree below that
+     * level is collapsed into a single line with its number of nodes and keys.
+     *
+     * @param out the destination of the output.
+     * @param maxDepth the deepest level whose keys are written.
+     * @throws IOException if the destination cannot be written.
+     */
+    public void writeSummary(Appendable out, int maxDepth) throws IOException {
+        out.append("Nodes: ").append(String.valueOf(tree.getNumNodes()))
+           .append(", Keys: ").append(String.valueOf(tree.getTotalKeys()))
+           .append(", Height: ").append(String.valueOf(height(tree.getRoot())))
+           .append('\n');
+        writeSubtree(out, tree.getRoot(), 0, maxDepth);
+    }
+
+    /**
+     * Writes the tree as a Graphviz DOT graph. Every node is drawn as a record with its keys,
+     * and every edge leaves from the slot between the two keys that delimit the child.
+     *
+     * @param out the destination of the output.
+     * @throws IOException if the destination cannot be written.
+     */
+    public void writeDot(Appendable out) throws IOException {
+        out.append("digraph B3RTree {\n");
+        out.append("    node [shape=record, height=0.1];\n");
+
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> ids = new ArrayDeque<>();
+        nodes.push(tree.getRoot());
+        ids.push(0);
+        int nextId = 1;
+
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            int id = ids.pop();
+
+            out.append("    n").append(String.valueOf(id)).append(" [label=\"<c0>");
+            for (int i = 0; i < node.getSize(); i++) {
+                out.append('|').append(String.valueOf(node.getKeys().get(i)))
+                   .append("|<c").append(String.valueOf(i + 1)).append('>');
+            }
+            out.append("\"];\n");
+
+            if (!node.isLeaf()) {
+                int firstChildId = nextId;
+                for (int i = 0; i <= node.getSize(); i++) {
+                    out.append("    n").append(String.valueOf(id)).append(":c").append(String.valueOf(i))
+                       .append(" -> n").append(String.valueOf(nextId++)).append(";\n");
+                }
+                // Se apilan en orden inverso para que los hijos se escriban de izquierda a derecha
+                for (int i = node.getSize(); i >= 0; i--) {
+                    nodes.push(node.getChildren().get(i));
+                    ids.push(firstChildId + i);
+                }
+            }
+        }
+
+        out.append("}\n");
+    }
+
+    /**
+     * Writes the keys of a subtree in order, collapsing the subtrees deeper than {@code maxDepth}.
+     * Each stack frame holds a node and the index of the next child to visit; the key that
+     * precedes that child is written just before descending into it.
+     *
+     * @param out the destination of the output.
+     * @param node the root of the subtree.
+     * @param depth the level of {@code node} in the tree.
+     * @param maxDepth the deepest level whose keys are written.
+     * @throws IOException if the destination cannot be written.
+     */
+    private void writeSubtree(Appendable out, Node node, int depth, int maxDepth) throws IOException {
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        ArrayDeque<int[]> positions = new ArrayDeque<>(); // {depth, next child}
+        nodes.push(node);
+        positions.push(new int[] {depth, 0});
+
+        while (!nodes.isEmpty()) {
+            Node current = nodes.peek();
+            int[] position = positions.peek();
+            int level = position[0];
+
+            if (level > maxDepth) {
+                nodes.pop();
+                positions.pop();
+                writeCollapsed(out, current, level);
+                continue;
+            }
+
+            int i = position[1]++;
+            if (i > current.getSize()) {
+                nodes.pop();
+                positions.pop();
+                continue;
+            }
+
+            if (i > 0) {
+                indent(out, level);
+                out.append("Key: ").append(String.valueOf(current.getKeys().get(i - 1)))
+                   .append(", Level: ").append(String.valueOf(level))
+                   .append('\n');
+            }
+            if (!current.isLeaf() && current.getChildren().get(i) != null) {
+                nodes.push(current.getChildren().get(i));
+                positions.push(new int[] {level + 1, 0});
+            }
+        }
+    }
+
+    /**
+     * Writes a single line describing a collapsed subtree.
+     *
+     * @param out the destination of the output.
+     * @param node the root of the collapsed subtree.
+     * @param depth the level of {@code node} in the tree.
+     * @throws IOException if the destination cannot be written.
+     */
+    private void writeCollapsed(Appendable out, Node node, int depth) throws IOException {
+        int nodes = 0;
+        long keys = 0;
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            Node current = pending.pop();
+            nodes++;
+            keys += current.getSize();
+            if (!current.isLeaf()) {
+                for (int i = 0; i <= current.getSize(); i++) {
+                    pending.push(current.getChildren().get(i));
+                }
+            }
+        }
+
+        indent(out, depth);
+        out.append("... ").append(String.valueOf(keys)).append(" keys in ")
+           .append(String.valueOf(nodes)).append(" nodes, Level: ").append(String.valueOf(depth))
+           .append('\n');
+    }
+
+    /**
+     * Returns the height of the subtree rooted at the given node, following its leftmost path.
+     *
+     * @param node the root of the subtree.
+     * @return the number of levels of the subtree.
+     */
+    private static int height(Node node) {
+        int levels = 1;
+        while (!node.isLeaf()) {
+            node = node.getChildren().get(0);
+            levels++;
+        }
+        return levels;
+    }
+
+    /**
+     * Writes the indentation of the given level.
+     *
+     * @param out the destination of the output.
+     * @param depth the level to indent.
+     * @throws IOException if the destination cannot be written.
+     */
+    private static void indent(Appendable out, int depth) throws IOException {
+        for (int i = 0; i < depth * INDENT; i++) {
+            out.append(' ');
+        }
+    }
+}
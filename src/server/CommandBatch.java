@@ -0,0 +1,76 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class represents a group of pipelined commands read from one connection. The commands
+ * are applied to the tree together and their responses are returned in the same order.
+ */
+class CommandBatch {
+
+    /** The commands of the batch, in the order they were received. */
+    private final ArrayList<String> commands;
+
+    /** The responses of the batch, filled in by the applier thread. */
+    private final String[] responses;
+
+    /** Completed once every command of the batch has been applied. */
+    private final CompletableFuture<String[]> done;
+
+    /**
+     * Constructs a batch with the given commands.
+     *
+     * @param commands the commands of the batch.
+     */
+    CommandBatch(ArrayList<String> commands) {
+        this.commands = commands;
+        this.responses = new String[commands.size()];
+        this.done = new CompletableFuture<>();
+    }
+
+    /**
+     * Returns the commands of the batch.
+     *
+     * @return the list of commands.
+     */
+    ArrayList<String> getCommands() {
+        return commands;
+    }
+
+    /**
+     * Sets the response of the command at the given position.
+     *
+     * @param index the position of the command.
+     * @param response the response of the command.
+     */
+    void setResponse(int index, String response) {
+        responses[index] = response;
+    }
+
+    /**
+     * Marks the batch as applied, releasing the connection waiting for it.
+     */
+    void complete() {
+        done.complete(responses);
+    }
+
+    /**
+     * Marks the batch as failed, for instance because the server is shutting down.
+     *
+     * @param cause the reason of the failure.
+     */
+    void fail(Throwable cause) {
+        done.completeExceptionally(cause);
+    }
+
+    /**
+     * Waits until the batch has been applied.
+     *
+     * @return the responses, in the same order as the commands.
+     * @throws Exception if the batch could not be applied.
+     */
+    String[] await() throws Exception {
+        return done.get();
+    }
+}
@@ -0,0 +1,84 @@
+package server;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * This class serves a single client connection of a {@link TreeServer}. Every command already
+ * received when the handler reads from the socket is grouped into one {@link CommandBatch}, so a
+ * client that pipelines its requests gets them applied together and answered with a single flush.
+ * Blank lines are ignored and get no response.
+ */
+class ConnectionHandler implements Runnable {
+
+    /** Maximum number of pipelined commands grouped into one batch. */
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    /** The server whose tree the commands are applied to. */
+    private final TreeServer server;
+
+    /** The socket of the connection. */
+    private final Socket socket;
+
+    /**
+     * Constructs a handler for the given connection.
+     *
+     * @param server the server that accepted the connection.
+     * @param socket the socket of the connection.
+     */
+    ConnectionHandler(TreeServer server, Socket socket) {
+        this.server = server;
+        this.socket = socket;
+    }
+
+    /**
+     * Reads commands until the client closes the connection, answering each group of
+     * pipelined commands once it has been applied.
+     */
+    @Override
+    public void run() {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                ArrayList<String> commands = new ArrayList<>();
+                addCommand(commands, line);
+                while (commands.size() < MAX_BATCH_SIZE && in.ready() && (line = in.readLine()) != null) {
+                    addCommand(commands, line);
+                }
+                if (commands.isEmpty()) {
+                    continue;
+                }
+
+                CommandBatch batch = new CommandBatch(commands);
+                server.submit(batch);
+                for (String response : batch.await()) {
+                    out.write(response);
+                    out.newLine();
+                }
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // El cliente ha cerrado la conexión o el servidor se está cerrando
+        } finally {
+            server.connectionClosed(socket);
+        }
+    }
+
+    /**
+     * Adds a line to the batch unless it is blank.
+     *
+     * @param commands the commands of the batch.
+     * @param line the line read from the client.
+     */
+    private static void addCommand(ArrayList<String> commands, String line) {
+        if (!line.isBlank()) {
+            commands.add(line);
+        }
+    }
+}
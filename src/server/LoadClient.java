@@ -0,0 +1,214 @@
+package server;
+
+import main.*;
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+
+/**
+ * This class implements a load generator for {@link TreeServer}. It opens several connections,
+ * sends windows of pipelined random commands through each of them and reports the throughput
+ * and the p50/p99/p999 latency of the commands.
+ * <p>
+ * Usage: {@code LoadClient [host|local] [port] [connections] [requests] [pipeline] [keyRange] [insertRatio] [deleteRatio]}.
+ * With {@code local} (the default) an embedded server is started on a free localhost port,
+ * so the whole run stays inside one process.
+ */
+public class LoadClient {
+
+    /** Host of the server, or {@code null} to start an embedded one. */
+    private final String host;
+
+    /** Port of the server. */
+    private final int port;
+
+    /** Number of concurrent connections. */
+    private final int connections;
+
+    /** Number of requests sent through each connection. */
+    private final int requestsPerConnection;
+
+    /** Number of requests written before reading their responses. */
+    private final int pipelineDepth;
+
+    /** Keys are drawn uniformly from {@code [0, keyRange)}. */
+    private final int keyRange;
+
+    /** Fraction of the requests that are inserts. */
+    private final double insertRatio;
+
+    /** Fraction of the requests that are deletes, the rest being lookups. */
+    private final double deleteRatio;
+
+    /**
+     * Constructs a load client with the given parameters.
+     *
+     * @param host the host of the server, or {@code null} to start an embedded one.
+     * @param port the port of the server, ignored for an embedded one.
+     * @param connections the number of concurrent connections.
+     * @param requestsPerConnection the number of requests sent through each connection.
+     * @param pipelineDepth the number of requests written before reading their responses.
+     * @param keyRange the number of distinct keys used by the requests.
+     * @param insertRatio the fraction of the requests that are inserts.
+     * @param deleteRatio the fraction of the requests that are deletes.
+     */
+    public LoadClient(String host, int port, int connections, int requestsPerConnection,
+                      int pipelineDepth, int keyRange, double insertRatio, double deleteRatio) {
+        this.host = host;
+        this.port = port;
+        this.connections = connections;
+        this.requestsPerConnection = requestsPerConnection;
+        this.pipelineDepth = Math.max(1, pipelineDepth);
+        this.keyRange = keyRange;
+        this.insertRatio = insertRatio;
+        this.deleteRatio = deleteRatio;
+    }
+
+    /**
+     * Runs the load against the server and prints the results.
+     *
+     * @throws Exception if a connection fails.
+     */
+    public void run() throws Exception {
+        TreeServer embedded = null;
+        String targetHost = host;
+        int targetPort = port;
+        if (host == null) {
+            embedded = new TreeServer(0);
+            embedded.start();
+            targetHost = "localhost";
+            targetPort = embedded.getPort();
+        }
+
+        ExecutorService executor = TreeServer.newThreadPerTaskExecutor();
+        try {
+            ArrayList<Future<long[]>> results = new ArrayList<>(connections);
+            long start = System.nanoTime();
+            for (int c = 0; c < connections; c++) {
+                String h = targetHost;
+                int p = targetPort;
+                long seed = c;
+                results.add(executor.submit(() -> runConnection(h, p, seed)));
+            }
+
+            LatencyHistogram latencies = new LatencyHistogram();
+            int errors = 0;
+            for (int c = 0; c < connections; c++) {
+                long[] connectionLatencies = results.get(c).get();
+                for (int i = 0; i < requestsPerConnection; i++) {
+                    long value = connectionLatencies[i];
+                    if (value < 0) {
+                        errors++;
+                        value = -value;
+                    }
+                    latencies.record(value);
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+
+            report(latencies, errors, elapsed);
+        } finally {
+            executor.shutdownNow(); // También si falla una conexión, para no dejar hilos vivos
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+    }
+
+    /**
+     * Sends the requests of one connection and measures their latencies. The latency of a request
+     * goes from the moment its window is written to the moment its response is read.
+     *
+     * @param targetHost the host of the server.
+     * @param targetPort the port of the server.
+     * @param seed the seed of the random commands of this connection.
+     * @return the latency of every request in nanoseconds, negated for the requests answered with an error.
+     * @throws IOException if the connection fails.
+     */
+    private long[] runConnection(String targetHost, int targetPort, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] latencies = new long[requestsPerConnection];
+
+        try (Socket socket = new Socket(targetHost, targetPort);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+
+            for (int sent = 0; sent < requestsPerConnection; sent += pipelineDepth) {
+                int window = Math.min(pipelineDepth, requestsPerConnection - sent);
+                for (int i = 0; i < window; i++) {
+                    out.write(randomCommand(random));
+                    out.newLine();
+                }
+                long windowStart = System.nanoTime();
+                out.flush();
+
+                for (int i = 0; i < window; i++) {
+                    String response = in.readLine();
+                    if (response == null) {
+                        throw new EOFException("Server closed the connection");
+                    }
+                    long latency = System.nanoTime() - windowStart;
+                    latencies[sent + i] = response.startsWith("ERR") ? -latency : latency;
+                }
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * Generates a random insert, delete or lookup following the configured mix.
+     *
+     * @param random the source of randomness.
+     * @return the command line.
+     */
+    private String randomCommand(SplittableRandom random) {
+        int key = random.nextInt(keyRange);
+        double choice = random.nextDouble();
+        if (choice < insertRatio) {
+            return "i " + key;
+        }
+        if (choice < insertRatio + deleteRatio) {
+            return "d " + key;
+        }
+        return "b " + key;
+    }
+
+    /**
+     * Prints the throughput and the latency percentiles of the run.
+     *
+     * @param latencies the latencies of the requests in nanoseconds.
+     * @param errors the number of requests answered with an error.
+     * @param elapsed the duration of the run in nanoseconds.
+     */
+    private void report(LatencyHistogram latencies, int errors, long elapsed) {
+        System.out.printf("Requests: %d (%d errors) over %d connections, pipeline depth %d%n",
+                latencies.getCount(), errors, connections, pipelineDepth);
+        System.out.printf("Throughput: %.0f ops/s%n", latencies.getCount() / (elapsed / 1e9));
+        System.out.printf("Latency p50: %.1f us, p99: %.1f us, p999: %.1f us, max: %.1f us%n",
+                latencies.getValueAtPercentile(50.0) / 1e3, latencies.getValueAtPercentile(99.0) / 1e3,
+                latencies.getValueAtPercentile(99.9) / 1e3, latencies.getMax() / 1e3);
+    }
+
+    /**
+     * Runs the load client with the parameters given as arguments.
+     *
+     * @param args the optional parameters, see the class description.
+     * @throws Exception if the run fails.
+     */
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 && !args[0].equals("local") ? args[0] : null;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : TreeServer.DEFAULT_PORT;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int requests = args.length > 3 ? Integer.parseInt(args[3]) : 100_000;
+        int pipeline = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+        int keyRange = args.length > 5 ? Integer.parseInt(args[5]) : 1_000_000;
+        double insertRatio = args.length > 6 ? Double.parseDouble(args[6]) : 0.2;
+        double deleteRatio = args.length > 7 ? Double.parseDouble(args[7]) : 0.1;
+
+        new LoadClient(host, port, connections, requests, pipeline, keyRange, insertRatio, deleteRatio).run();
+    }
+}
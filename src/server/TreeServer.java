@@ -0,0 +1,290 @@
+package server;
+
+import main.*;
+import java.io.*;
+import java.net.*;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * This class implements a local server that shares a single {@link B3RTree} between several processes.
+ * It understands the following commands of {@code App}: {@code c}, {@code i n}, {@code d n}, {@code b n},
+ * {@code r a b}, {@code mn}, {@code mx}, {@code nn} and {@code nk}, one per line, and answers each one
+ * with exactly one line. Any other command is answered with an error.
+ * <p>
+ * Every connection is served by its own (virtual, when the JDK supports it) thread, and clients may
+ * pipeline requests without waiting for the responses. The tree itself is only touched by a single
+ * applier thread, which drains the pending batches of all connections and applies them in one pass.
+ */
+public class TreeServer implements Closeable {
+
+    /** Default port the server listens on. */
+    public static final int DEFAULT_PORT = 7070;
+
+    /** Maximum number of batches applied in one pass of the applier thread. */
+    private static final int MAX_BATCHES_PER_PASS = 256;
+
+    /** The tree shared by every connection. Only accessed from the applier thread. */
+    private B3RTree tree;
+
+    /** Batches waiting to be applied to the tree. */
+    private final BlockingQueue<CommandBatch> pending;
+
+    /** The socket accepting connections, bound to the loopback address. */
+    private final ServerSocket serverSocket;
+
+    /** Executor running one thread per connection. */
+    private final ExecutorService connections;
+
+    /** Sockets of the connections currently open. */
+    private final Set<Socket> openSockets;
+
+    /** Thread accepting new connections. */
+    private final Thread acceptor;
+
+    /** Thread applying the pending batches to the tree. */
+    private final Thread applier;
+
+    /** Indicates if the server has been closed. */
+    private volatile boolean closed;
+
+    /**
+     * Constructs a server listening on the given local port. The server does not accept
+     * connections until {@link #start()} is called.
+     *
+     * @param port the port to listen on, or 0 to pick any free port.
+     * @throws IOException if the port cannot be bound.
+     */
+    public TreeServer(int port) throws IOException {
+        this.tree = new B3RTree();
+        this.pending = new LinkedBlockingQueue<>();
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.connections = newThreadPerTaskExecutor();
+        this.openSockets = ConcurrentHashMap.newKeySet();
+        this.acceptor = new Thread(this::acceptLoop, "b3r-acceptor");
+        this.applier = new Thread(this::applyLoop, "b3r-applier");
+    }
+
+    /**
+     * Starts accepting connections and applying their commands.
+     */
+    public void start() {
+        applier.start();
+        acceptor.start();
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return the local port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections, closes the open ones and fails every pending batch.
+     *
+     * @throws IOException if the server socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (Socket socket : openSockets) {
+            socket.close();
+        }
+        connections.shutdownNow();
+        applier.interrupt();
+        failPending(new IOException("Server closed"));
+    }
+
+    /**
+     * Fails every batch still waiting to be applied.
+     *
+     * @param cause the reason of the failure.
+     */
+    private void failPending(Throwable cause) {
+        CommandBatch batch;
+        while ((batch = pending.poll()) != null) {
+            batch.fail(cause);
+        }
+    }
+
+    /**
+     * Queues a batch of commands to be applied to the tree.
+     *
+     * @param batch the batch to apply.
+     * @throws IOException if the server has been closed.
+     */
+    void submit(CommandBatch batch) throws IOException {
+        if (closed) {
+            throw new IOException("Server closed");
+        }
+        pending.add(batch);
+        if (closed) {
+            failPending(new IOException("Server closed")); // Cerrado mientras se encolaba
+        }
+    }
+
+    /**
+     * Forgets a connection that has been closed.
+     *
+     * @param socket the socket of the connection.
+     */
+    void connectionClosed(Socket socket) {
+        openSockets.remove(socket);
+    }
+
+    /**
+     * Accepts connections until the server is closed, handing each one to its own thread.
+     */
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                openSockets.add(socket);
+                connections.execute(new ConnectionHandler(this, socket));
+            } catch (RejectedExecutionException e) {
+                return;
+            } catch (IOException e) {
+                if (!closed) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the pending batches until the server is closed, or closes the server if applying
+     * them fails with an {@link Error}, since no other thread could answer the clients. Every pass
+     * takes all the batches queued so far (up to a limit), so that writes arriving from several
+     * connections are applied to the tree together instead of one hand-off per command.
+     */
+    private void applyLoop() {
+        ArrayList<CommandBatch> batches = new ArrayList<>(MAX_BATCHES_PER_PASS);
+        while (!closed) {
+            try {
+                batches.add(pending.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            pending.drainTo(batches, MAX_BATCHES_PER_PASS - 1);
+
+            try {
+                applyPass(batches);
+            } catch (Error e) {
+                // Sin el hilo aplicador nadie respondería: se cierra el servidor en lugar de dejarlo colgado
+                e.printStackTrace();
+                for (CommandBatch batch : batches) {
+                    batch.fail(e); // No afecta a los lotes ya completados
+                }
+                try {
+                    close();
+                } catch (IOException closeError) {
+                    closeError.printStackTrace();
+                }
+                return;
+            }
+            batches.clear();
+        }
+    }
+
+    /**
+     * Applies the commands of a pass in order and completes each batch as soon as its commands
+     * have been applied. Every command, inserts included, is applied and answered on its own:
+     * the pass already groups the writes of all the connections into a single hand-off, and
+     * {@link B3RTree#insert(int)} keeps the filter up to date in amortized constant time.
+     *
+     * @param batches the batches of the pass.
+     */
+    private void applyPass(ArrayList<CommandBatch> batches) {
+        for (CommandBatch batch : batches) {
+            ArrayList<String> commands = batch.getCommands();
+            for (int i = 0; i < commands.size(); i++) {
+                batch.setResponse(i, execute(commands.get(i)));
+            }
+            batch.complete();
+        }
+    }
+
+    /**
+     * Executes a single command against the tree.
+     *
+     * @param line the command, with the same syntax as the operation files of {@code App}.
+     * @return the response line of the command.
+     */
+    private String execute(String line) {
+        String[] data = line.trim().split(" +");
+        try {
+            switch (data[0]) {
+                case "c":
+                    tree = new B3RTree();
+                    return "OK";
+                case "i":
+                    tree.insert(Integer.parseInt(data[1]));
+                    return "OK";
+                case "d":
+                    tree.delete(Integer.parseInt(data[1]));
+                    return "OK";
+                case "b":
+                    return String.valueOf(tree.searchValue(Integer.parseInt(data[1])));
+                case "r":
+                    StringBuilder result = new StringBuilder();
+                    for (int key : tree.rangeSearch(Integer.parseInt(data[1]), Integer.parseInt(data[2]))) {
+                        if (result.length() > 0) {
+                            result.append(' ');
+                        }
+                        result.append(key);
+                    }
+                    return result.toString();
+                case "mn":
+                    return String.valueOf(tree.minValue());
+                case "mx":
+                    return String.valueOf(tree.maxValue());
+                case "nn":
+                    return String.valueOf(tree.getNumNodes());
+                case "nk":
+                    return String.valueOf(tree.getTotalKeys());
+                default:
+                    return "ERR Unknown command: " + data[0];
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            return "ERR Invalid arguments: " + line;
+        } catch (RuntimeException e) {
+            return "ERR " + e.getMessage();
+        }
+    }
+
+    /**
+     * Creates an executor that starts a new thread for every task. Virtual threads are used
+     * when the running JDK provides them, platform threads otherwise.
+     *
+     * @return the executor.
+     */
+    static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(); // JDK anterior a 21
+        }
+    }
+
+    /**
+     * Starts a server on the port given as first argument, or on {@link #DEFAULT_PORT},
+     * and keeps it running until the process is stopped.
+     *
+     * @param args the optional port.
+     * @throws Exception if the server cannot be started.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        TreeServer server = new TreeServer(port);
+        server.start();
+        System.out.println("B3R Tree server listening on localhost:" + server.getPort());
+        server.applier.join();
+        System.out.println("B3R Tree server stopped");
+    }
+}